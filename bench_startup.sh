@@ -0,0 +1,59 @@
+#!/bin/bash
+#
+# Compares wall clock time and peak RSS of the JVM and the native build of the CsvConvert command
+# line application for every file in src/test/resources.
+#
+# Build both variants first:
+#   ./mvnw package -DskipTests
+#   ./mvnw package -DskipTests -Pnative
+
+JVM_APP="target/quarkus-app/quarkus-run.jar"
+NATIVE_APP=$(ls target/*-runner 2>/dev/null | head -n 1)
+RUNS=${RUNS:-5}
+OUT_DIR=$(mktemp -d)
+
+if [ ! -f "${JVM_APP}" ] || [ -z "${NATIVE_APP}" ]; then
+    echo "Build the JVM and the native application first"
+    exit 1
+fi
+
+# prints "<elapsed seconds> <max RSS in KB>" for the given command; fails if the command fails
+measure() {
+    /usr/bin/time -f "%e %M" -o "${OUT_DIR}/time.txt" "$@" > "${OUT_DIR}/output.txt" 2>&1
+    local status=$?
+    if [ ${status} -ne 0 ]; then
+        echo "'$*' failed with exit code ${status}:" >&2
+        cat "${OUT_DIR}/output.txt" >&2
+        return ${status}
+    fi
+    cat "${OUT_DIR}/time.txt"
+}
+
+printf "%-30s %-7s %12s %12s\n" "file" "variant" "avg time [s]" "max RSS [KB]"
+for file in src/test/resources/*.txt src/test/resources/*.csv; do
+    [ -f "${file}" ] || continue
+    for variant in jvm native; do
+        total_time=0
+        max_rss=0
+        for ((i = 0; i < RUNS; i++)); do
+            if [ "${variant}" == "jvm" ]; then
+                result=$(measure java -jar "${JVM_APP}" "${file}" "${OUT_DIR}/out.csv")
+            else
+                result=$(measure "${NATIVE_APP}" "${file}" "${OUT_DIR}/out.csv")
+            fi
+            if [ $? -ne 0 ]; then
+                rm -rf "${OUT_DIR}"
+                exit 1
+            fi
+            read -r time rss <<< "${result}"
+            total_time=$(echo "${total_time} + ${time}" | bc)
+            if [ "${rss}" -gt "${max_rss}" ]; then
+                max_rss=${rss}
+            fi
+        done
+        printf "%-30s %-7s %12s %12s\n" "$(basename "${file}")" "${variant}" \
+            "$(echo "scale=3; ${total_time} / ${RUNS}" | bc)" "${max_rss}"
+    done
+done
+
+rm -rf "${OUT_DIR}"
@@ -0,0 +1,125 @@
+package at.itbh;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.inject.Inject;
+import io.quarkus.runtime.QuarkusApplication;
+import io.quarkus.runtime.annotations.QuarkusMain;
+import io.vertx.mutiny.core.Vertx;
+
+/**
+ * Command line entry point converting a delimited file to another delimited file
+ *
+ * <p>
+ * Usage: {@code <input> <output> [input delimiter] [output delimiter]}. Both delimiters default to
+ * ",". Fields containing the output delimiter, a double quote or a line break are quoted
+ * according to RFC 4180, so no field is changed by the conversion. The application is meant to be
+ * run as a short lived process (e.g. one per file), which is why it is also built as a native
+ * image using the {@code native} profile.
+ * </p>
+ */
+@QuarkusMain
+public class CsvConvert implements QuarkusApplication {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_USAGE = 1;
+    static final int EXIT_IO_ERROR = 2;
+
+    private static final Charset ENCODING = StandardCharsets.UTF_8;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ParserWorkerPool workerPool;
+
+    @Override
+    public int run(String... args) {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: <input> <output> [input delimiter] [output delimiter]");
+            return EXIT_USAGE;
+        }
+        var input = new File(args[0]);
+        var output = new File(args[1]);
+        char inputDelimiter;
+        char outputDelimiter;
+        try {
+            inputDelimiter = args.length > 2 ? toDelimiter(args[2]) : ',';
+            outputDelimiter = args.length > 3 ? toDelimiter(args[3]) : ',';
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        try {
+            long lines = convert(input, output, inputDelimiter, outputDelimiter);
+            System.out.println("Converted " + lines + " lines to " + output.getPath());
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    /**
+     * Parses the input file and writes every record to the output file
+     *
+     * @param input the file to read
+     * @param output the file to write; an existing file is overwritten
+     * @param inputDelimiter the delimiter used by the input file
+     * @param outputDelimiter the delimiter to use for the output file
+     * @return the number of written lines
+     * @throws IOException if the input can't be read or the output can't be written
+     */
+    long convert(File input, File output, char inputDelimiter, char outputDelimiter)
+            throws IOException {
+        var parser = new CsvParser(vertx, ENCODING, inputDelimiter);
+        parser.setWorkerPool(workerPool);
+        long lines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(output.toPath(), ENCODING)) {
+            for (var record : parser.parseToList(input, new CsvParser.Header()).subscribe()
+                    .asIterable()) {
+                for (int i = 0; i < record.size(); i++) {
+                    if (i > 0) {
+                        writer.write(outputDelimiter);
+                    }
+                    writer.write(quote(record.get(i), outputDelimiter));
+                }
+                writer.newLine();
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Encloses the field in double quotes if it contains the delimiter, a double quote or a line
+     * break; contained double quotes are escaped by doubling them
+     *
+     * @see https://datatracker.ietf.org/doc/html/rfc4180#section-2
+     */
+    static String quote(String field, char delimiter) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return '"' + field.replace("\"", "\"\"") + '"';
+            }
+        }
+        return field;
+    }
+
+    private static char toDelimiter(String arg) {
+        if ("\\t".equals(arg)) {
+            return '\t';
+        }
+        if (arg.length() != 1) {
+            throw new IllegalArgumentException("A delimiter must be a single character: " + arg);
+        }
+        return arg.charAt(0);
+    }
+
+}
@@ -1,13 +1,25 @@
 package at.itbh;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
 
 /**
  * A parser for delimited data; e.g. CSV
@@ -54,10 +66,69 @@ public class CsvParser {
         }
     }
 
+    /**
+     * A read only view on a field of a line which is reused for every evaluated field
+     *
+     * <p>
+     * The view is only valid while the predicate is evaluated; call {@link #toString()} to keep
+     * the field's contents.
+     * </p>
+     */
+    static final class FieldView implements CharSequence {
+        private CharSequence line;
+        private int start;
+        private int end;
+
+        void set(CharSequence line, int start, int end) {
+            this.line = line;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return line.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return line.subSequence(start, end).toString();
+        }
+    }
+
+    private static class ColumnFilter {
+        final int column;
+        final Predicate<CharSequence> predicate;
+
+        ColumnFilter(int column, Predicate<CharSequence> predicate) {
+            this.column = column;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * The number of bytes read per sample by {@link #profile(File, Header, int)}
+     */
+    static final int SAMPLE_SIZE = 64 * 1024;
+
     char delimiter = ',';
     LineParser lineParser;
     Mode mode = Mode.NOT_QUOTED;
     private Pattern splitPattern;
+    private final List<ColumnFilter> filters = new ArrayList<>();
 
     CsvParser(Vertx vertx, Charset encoding) {
         this(vertx, encoding, ',');
@@ -69,46 +140,321 @@ public class CsvParser {
 
     CsvParser(Vertx vertx, Charset encoding, char delimiter, Mode mode) {
         this.lineParser = new LineParser(vertx, encoding);
+        this.delimiter = delimiter;
         this.mode = mode;
         if (mode == Mode.NOT_QUOTED) {
-            this.splitPattern = Pattern.compile(Character.toString(delimiter));
+            this.splitPattern = Pattern.compile(Pattern.quote(Character.toString(delimiter)));
         } else {
             throw new UnsupportedOperationException("Only NOT_QUOTED is supported at the moment");
         }
     }
 
+    /**
+     * Splits and tokenizes the lines on the worker pool
+     * 
+     * @param workerPool the pool to use or null for parsing on the emitting thread
+     * @see LineParser#setWorkerPool(ParserWorkerPool)
+     */
+    void setWorkerPool(ParserWorkerPool workerPool) {
+        lineParser.setWorkerPool(workerPool);
+    }
+
+    /**
+     * Registers a predicate for a column; lines whose field doesn't match are dropped before the
+     * line is split into fields
+     *
+     * <p>
+     * The predicate receives a {@link CharSequence} view on the raw field without allocating a
+     * {@link String}. Predicates are evaluated in column order and the remaining line isn't
+     * scanned once a predicate fails. A line with fewer columns than a filtered column is dropped.
+     * The lines are filtered by the {@link LineParser} before they are converted to a
+     * {@link String}, except in {@link LineParser.Mode#NIO} mode, which reads whole lines.
+     * </p>
+     *
+     * @param column the zero based column index
+     * @param predicate the predicate the field has to match
+     * @return this parser
+     */
+    CsvParser addFilter(int column, Predicate<CharSequence> predicate) {
+        if (column < 0) {
+            throw new IllegalArgumentException("The column index must not be negative: " + column);
+        }
+        int index = 0;
+        while (index < filters.size() && filters.get(index).column <= column) {
+            index++;
+        }
+        filters.add(index, new ColumnFilter(column, predicate));
+        return this;
+    }
+
+    /**
+     * Evaluates the registered filters against the fields of the line
+     *
+     * @param line the line to check
+     * @param view the view to reuse for the fields
+     * @return true if the line matches all filters
+     */
+    boolean matches(CharSequence line, FieldView view) {
+        int column = 0;
+        int start = 0;
+        for (ColumnFilter filter : filters) {
+            // skip to the filtered column
+            while (column < filter.column) {
+                int next = indexOf(line, delimiter, start);
+                if (next < 0) {
+                    return false;
+                }
+                start = next + 1;
+                column++;
+            }
+            int end = indexOf(line, delimiter, start);
+            view.set(line, start, end < 0 ? line.length() : end);
+            if (!filter.predicate.test(view)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from) {
+        for (int i = from; i < line.length(); i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param skipHeader if the first line is the header, which is dropped instead of filtered
+     * @return creates the filter for the {@link LineParser} or null if there are no filters
+     */
+    private Supplier<Predicate<CharSequence>> lineFilter(boolean skipHeader) {
+        if (filters.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            var view = new FieldView();
+            boolean[] header = {skipHeader};
+            return line -> {
+                if (header[0]) {
+                    header[0] = false;
+                    return false;
+                }
+                return matches(line, view);
+            };
+        };
+    }
+
     List<String> splitLine(String line) {
         // try (Scanner scanner = new Scanner(line)) {
         //     scanner.useDelimiter(splitPattern);
         //     return scanner.tokens().collect(Collectors.toList());
         // }
-        return Arrays.asList(splitPattern.split(line));
+        // keep trailing empty fields
+        return Arrays.asList(splitPattern.split(line, -1));
     }
 
     Multi<List<String>> parseToList(String data, Header header) {
-        Multi<String> reader = lineParser.parse(data);
+        var lineFilter = lineFilter(header.getContainsHeader());
+        Multi<String> reader = lineParser.parse(data, lineFilter);
         if (header.getContainsHeader()) {
             lineParser.parse(data).onItem().transform(this::splitLine).select().first().subscribe()
                     .with(headerLine -> {
                         header.setHeader(headerLine.toArray(new String[] {}));
                     });
-            // skip first line
-            reader.skip().first();
+            if (lineFilter == null) {
+                // skip first line
+                reader = reader.skip().first();
+            }
         }
         return reader.onItem().transform(this::splitLine);
     }
 
     Multi<List<String>> parseToList(File data, Header header) throws IOException {
-        Multi<String> reader = lineParser.parse(data);
+        var lineFilter = lineFilter(header.getContainsHeader());
+        Multi<String> reader = lineParser.parse(data, lineFilter);
         if (header.getContainsHeader()) {
             lineParser.parse(data).onItem().transform(this::splitLine).select().first().subscribe()
                     .with(headerLine -> {
                         header.setHeader(headerLine.toArray(new String[] {}));
                     });
-            // skip first line
-            reader.skip().first();
+            if (lineFilter == null) {
+                // skip first line
+                reader = reader.skip().first();
+            }
         }
         return reader.onItem().transform(this::splitLine);
     }
 
+    /**
+     * Collects all records of the file into an off-heap table
+     *
+     * @param data the file to parse
+     * @param header the header configuration
+     * @return the table, which has to be closed by the caller
+     * @throws IOException if the file can't be read
+     */
+    Uni<CsvTable> parseToTable(File data, Header header) throws IOException {
+        return CsvTable.collect(parseToList(data, header));
+    }
+
+    /**
+     * Collects statistics of all rows of the file in a single pass with constant memory
+     *
+     * @param data the file to profile
+     * @param header the header configuration
+     * @return the exact profile
+     * @throws IOException if the file can't be read
+     */
+    Uni<CsvProfile> profile(File data, Header header) throws IOException {
+        return parseToList(data, header).collect().in(CsvProfile::new, CsvProfile::add).onItem()
+                .transform(profile -> profile.complete(true, profile.sampledRows, 0));
+    }
+
+    /**
+     * Estimates statistics of the file by reading samples of {@link #SAMPLE_SIZE} bytes at random
+     * offsets, one in each of {@code samples} equally sized parts of the file
+     *
+     * <p>
+     * Each sample is aligned to line boundaries by dropping the partial first and last line, the
+     * remaining lines are parsed using the {@link LineParser}. The row count is estimated from the
+     * lines per byte of the samples. Files smaller than all samples together are profiled exactly.
+     * The alignment relies on line terminators not being part of multi byte characters, which
+     * holds for ASCII compatible encodings like UTF-8.
+     * </p>
+     *
+     * @param data the file to profile
+     * @param header the header configuration
+     * @param samples the number of samples to read
+     * @return the estimated profile
+     * @throws IOException if the file can't be read
+     */
+    Uni<CsvProfile> profile(File data, Header header, int samples) throws IOException {
+        if (!data.exists()) {
+            throw new FileNotFoundException(data.getPath());
+        }
+        if (samples <= 0) {
+            throw new IllegalArgumentException("At least one sample is required");
+        }
+        if (data.length() <= (long) samples * SAMPLE_SIZE) {
+            return profile(data, header);
+        }
+        return Uni.createFrom().item(() -> {
+            try {
+                return sample(data, header, samples);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private CsvProfile sample(File data, Header header, int samples) throws IOException {
+        if (header.getContainsHeader()) {
+            // the samples skip the partial first line, so the header is read on its own
+            var headerLine = lineParser.parse(data).toUni().await().indefinitely();
+            if (headerLine != null) {
+                header.setHeader(splitLine(headerLine).toArray(new String[] {}));
+            }
+        }
+        long size = data.length();
+        var random = new Random();
+        // one sample per stratum, so the samples never overlap
+        long stratum = size / samples;
+        long[] offsets = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            offsets[i] = i * stratum + (long) (random.nextDouble() * (stratum - SAMPLE_SIZE + 1));
+        }
+
+        var profile = new CsvProfile();
+        var view = new FieldView();
+        long[] sampleLines = new long[samples];
+        long[] sampleBytes = new long[samples];
+        long totalLines = 0;
+        long totalBytes = 0;
+        // samples without a complete line don't take part in the estimation
+        int nonEmptySamples = 0;
+        try (var channel = FileChannel.open(data.toPath(), StandardOpenOption.READ)) {
+            var bytes = ByteBuffer.allocate(SAMPLE_SIZE);
+            for (int i = 0; i < samples; i++) {
+                // start one byte early to keep a line beginning exactly at the offset
+                long position = Math.max(0, offsets[i] - 1);
+                bytes.clear();
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, position + bytes.position()) < 0) {
+                        break;
+                    }
+                }
+                int length = bytes.position();
+                int start = 0;
+                if (position > 0 || header.getContainsHeader()) {
+                    start = indexAfterLineTerminator(bytes.array(), 0, length);
+                    if (start < 0) {
+                        continue;
+                    }
+                }
+                int end = position + length >= size ? length
+                        : lastIndexAfterLineTerminator(bytes.array(), start, length);
+                if (end <= start) {
+                    continue;
+                }
+
+                var chunk = Buffer.buffer(Arrays.copyOfRange(bytes.array(), start, end));
+                var lines = lineParser.parse(chunk).collect().asList().await().indefinitely();
+                for (String line : lines) {
+                    if (filters.isEmpty() || matches(line, view)) {
+                        profile.add(splitLine(line));
+                        sampleLines[i]++;
+                    }
+                }
+                sampleBytes[i] = end - start;
+                nonEmptySamples++;
+                totalLines += sampleLines[i];
+                totalBytes += sampleBytes[i];
+            }
+        }
+        if (totalBytes == 0) {
+            return profile.complete(false, 0, size);
+        }
+
+        // ratio estimator of the lines per byte and its standard error
+        double linesPerByte = (double) totalLines / totalBytes;
+        double meanBytes = (double) totalBytes / nonEmptySamples;
+        double residuals = 0;
+        for (int i = 0; i < samples; i++) {
+            double residual = sampleLines[i] - linesPerByte * sampleBytes[i];
+            residuals += residual * residual;
+        }
+        double standardError = nonEmptySamples > 1
+                ? Math.sqrt(residuals / ((double) nonEmptySamples * (nonEmptySamples - 1)))
+                        / meanBytes
+                : linesPerByte;
+        long rowCount = Math.round(linesPerByte * size) - (header.getContainsHeader() ? 1 : 0);
+        return profile.complete(false, Math.max(0, rowCount), 1.96 * standardError * size);
+    }
+
+    /**
+     * @return the index after the first line terminator in the range or -1 if there is none
+     */
+    private static int indexAfterLineTerminator(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the last line terminator in the range or -1 if there is none
+     */
+    private static int lastIndexAfterLineTerminator(byte[] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
 }
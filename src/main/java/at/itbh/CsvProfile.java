@@ -0,0 +1,184 @@
+package at.itbh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics of delimited data collected by {@link CsvParser#profile(java.io.File,
+ * CsvParser.Header)} or estimated by {@link CsvParser#profile(java.io.File, CsvParser.Header, int)}
+ *
+ * <p>
+ * The statistics are computed in constant memory per column: the number of distinct values is
+ * estimated using a {@link HyperLogLog} sketch. For a sampled profile the distinct values only
+ * reflect the sampled rows and therefore are a lower bound of the distinct values of the file.
+ * </p>
+ */
+public class CsvProfile {
+
+    static final int HYPER_LOG_LOG_PRECISION = 14;
+
+    /**
+     * Statistics of a single column
+     */
+    public static class ColumnProfile {
+        long values;
+        long empty;
+        String min;
+        String max;
+        boolean numeric = true;
+        double numericMin = Double.POSITIVE_INFINITY;
+        double numericMax = Double.NEGATIVE_INFINITY;
+        final HyperLogLog distinct = new HyperLogLog(HYPER_LOG_LOG_PRECISION);
+        long rows;
+        boolean exact;
+
+        void add(String value) {
+            values++;
+            if (value.isEmpty()) {
+                empty++;
+                return;
+            }
+            distinct.add(value);
+            if (min == null || value.compareTo(min) < 0) {
+                min = value;
+            }
+            if (max == null || value.compareTo(max) > 0) {
+                max = value;
+            }
+            if (numeric) {
+                try {
+                    double number = Double.parseDouble(value);
+                    numericMin = Math.min(numericMin, number);
+                    numericMax = Math.max(numericMax, number);
+                } catch (NumberFormatException e) {
+                    numeric = false;
+                }
+            }
+        }
+
+        /**
+         * @return the estimated number of distinct non empty values
+         */
+        public long getDistinct() {
+            return distinct.estimate();
+        }
+
+        /**
+         * @return the relative standard error of {@link #getDistinct()} or {@link Double#NaN} if
+         *         the profile is sampled; the distinct values of a sampled profile are only a
+         *         lower bound
+         */
+        public double getDistinctError() {
+            return exact ? distinct.standardError() : Double.NaN;
+        }
+
+        /**
+         * @return true if {@link #getDistinct()} only counts the sampled rows and therefore is a
+         *         lower bound of the distinct values of the file
+         */
+        public boolean isDistinctLowerBound() {
+            return !exact;
+        }
+
+        /**
+         * @return the ratio of rows having an empty or no value in this column
+         */
+        public double getNullRatio() {
+            if (rows == 0) {
+                return 0;
+            }
+            return (double) (empty + rows - values) / rows;
+        }
+
+        /**
+         * @return the lexicographically smallest non empty value or null if there is none
+         */
+        public String getMin() {
+            return min;
+        }
+
+        /**
+         * @return the lexicographically largest non empty value or null if there is none
+         */
+        public String getMax() {
+            return max;
+        }
+
+        /**
+         * @return true if all non empty values are numbers
+         */
+        public boolean isNumeric() {
+            return numeric && min != null;
+        }
+
+        public double getNumericMin() {
+            return numericMin;
+        }
+
+        public double getNumericMax() {
+            return numericMax;
+        }
+    }
+
+    boolean exact;
+    long rowCount;
+    double rowCountError;
+    long sampledRows;
+    final List<ColumnProfile> columns = new ArrayList<>();
+
+    void add(List<String> record) {
+        sampledRows++;
+        while (columns.size() < record.size()) {
+            columns.add(new ColumnProfile());
+        }
+        for (int i = 0; i < record.size(); i++) {
+            columns.get(i).add(record.get(i));
+        }
+    }
+
+    CsvProfile complete(boolean exact, long rowCount, double rowCountError) {
+        this.exact = exact;
+        this.rowCount = rowCount;
+        this.rowCountError = rowCountError;
+        for (ColumnProfile column : columns) {
+            column.rows = sampledRows;
+            column.exact = exact;
+        }
+        return this;
+    }
+
+    /**
+     * @return true if all rows have been read, false if the statistics are estimated from samples
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return the (estimated) number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the absolute error of {@link #getRowCount()} at a confidence level of about 95%; 0
+     *         for exact profiles
+     */
+    public double getRowCountError() {
+        return rowCountError;
+    }
+
+    /**
+     * @return the number of rows the column statistics are based on
+     */
+    public long getSampledRows() {
+        return sampledRows;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+}
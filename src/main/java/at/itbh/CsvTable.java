@@ -0,0 +1,514 @@
+package at.itbh;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * A table of records stored off-heap in direct memory segments
+ *
+ * <p>
+ * Every row is stored contiguously as the number of fields, the end offsets of the fields and the
+ * fields' UTF-8 bytes. The positions of the rows are kept in a segmented off-heap index as well, so
+ * the heap usage doesn't grow with the size of the table. Fields are only decoded to {@link String} when
+ * they are accessed.
+ * </p>
+ * <p>
+ * Hash indexes for point lookups can be created on key columns using {@link #createIndex(int)};
+ * they are kept up to date when further rows are added.
+ * </p>
+ * <p>
+ * The memory is freed by {@link #close()}. A table isn't thread safe.
+ * </p>
+ * <p>
+ * The segments are allocated by {@link ByteBuffer#allocateDirect(int)}, so all tables together
+ * are limited by the JVM's direct memory limit, which defaults to the maximum heap size. Set
+ * {@code -XX:MaxDirectMemorySize} for tables larger than the heap; exceeding the limit fails with
+ * an {@link OutOfMemoryError} "Cannot reserve direct buffer memory".
+ * </p>
+ */
+public class CsvTable implements AutoCloseable {
+
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the memory is freed by the garbage collector once the buffers are unreachable
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * A zero initialized array of ints or longs stored in off-heap segments of
+     * {@link #SEGMENT_SIZE} bytes; it grows by adding segments, so it is neither copied nor limited
+     * by the maximum size of a single buffer
+     */
+    private static class OffHeapArray {
+        final int elementSize;
+        final List<ByteBuffer> arraySegments = new ArrayList<>();
+
+        OffHeapArray(int elementSize) {
+            this.elementSize = elementSize;
+        }
+
+        /**
+         * Makes sure the array holds at least the given number of elements
+         */
+        void ensureCapacity(long length) {
+            long bytes = length * elementSize;
+            while ((long) arraySegments.size() * SEGMENT_SIZE < bytes) {
+                arraySegments.add(ByteBuffer.allocateDirect(SEGMENT_SIZE));
+            }
+        }
+
+        int getInt(long index) {
+            long offset = index * Integer.BYTES;
+            return arraySegments.get((int) (offset / SEGMENT_SIZE))
+                    .getInt((int) (offset % SEGMENT_SIZE));
+        }
+
+        void putInt(long index, int value) {
+            long offset = index * Integer.BYTES;
+            arraySegments.get((int) (offset / SEGMENT_SIZE)).putInt((int) (offset % SEGMENT_SIZE),
+                    value);
+        }
+
+        long getLong(long index) {
+            long offset = index * Long.BYTES;
+            return arraySegments.get((int) (offset / SEGMENT_SIZE))
+                    .getLong((int) (offset % SEGMENT_SIZE));
+        }
+
+        void putLong(long index, long value) {
+            long offset = index * Long.BYTES;
+            arraySegments.get((int) (offset / SEGMENT_SIZE))
+                    .putLong((int) (offset % SEGMENT_SIZE), value);
+        }
+
+        void free() {
+            arraySegments.forEach(CsvTable::free);
+            arraySegments.clear();
+        }
+    }
+
+    /**
+     * An open addressing hash table with a slot per distinct key stored off-heap
+     *
+     * <p>
+     * A slot holds the last row added with the key; the rows with the same key are chained by
+     * {@link #next}, so adding a row and looking up a key take constant time regardless of the
+     * number of duplicates.
+     * </p>
+     */
+    private class HashIndex {
+        final int column;
+        // the last row + 1 per slot, 0 marks an empty slot
+        final OffHeapArray slots = new OffHeapArray(Integer.BYTES);
+        // the previous row + 1 with the same key per row, 0 marks the end of the chain
+        final OffHeapArray next = new OffHeapArray(Integer.BYTES);
+        long capacity;
+        long keys;
+
+        HashIndex(int column) {
+            this.column = column;
+            capacity = 16;
+            slots.ensureCapacity(capacity);
+            for (int row = 0; row < rowCount; row++) {
+                add(row);
+            }
+        }
+
+        /**
+         * Adds the row and doubles the capacity if the table is half full
+         */
+        void add(int row) {
+            next.ensureCapacity(row + 1L);
+            long slot = hashRow(row) & (capacity - 1);
+            int head;
+            while ((head = slots.getInt(slot)) != 0) {
+                if (fieldsEqual(head - 1, row, column)) {
+                    next.putInt(row, head);
+                    slots.putInt(slot, row + 1);
+                    return;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots.putInt(slot, row + 1);
+            if (++keys * 2 > capacity) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long oldCapacity = capacity;
+            OffHeapArray oldSlots = new OffHeapArray(Integer.BYTES);
+            oldSlots.arraySegments.addAll(slots.arraySegments);
+            slots.arraySegments.clear();
+            capacity = oldCapacity * 2;
+            slots.ensureCapacity(capacity);
+            for (long i = 0; i < oldCapacity; i++) {
+                int head = oldSlots.getInt(i);
+                if (head != 0) {
+                    long slot = hashRow(head - 1) & (capacity - 1);
+                    while (slots.getInt(slot) != 0) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    slots.putInt(slot, head);
+                }
+            }
+            oldSlots.free();
+        }
+
+        long hashRow(int row) {
+            long position = rowPosition(row);
+            ByteBuffer segment = segments.get(segment(position));
+            int offset = offset(position);
+            int fieldCount = segment.getInt(offset);
+            if (column >= fieldCount) {
+                return hash(segment, 0, 0) & 0xffffffffL;
+            }
+            int start = fieldStart(segment, offset, fieldCount, column);
+            int end = fieldEnd(segment, offset, fieldCount, column);
+            return hash(segment, start, end) & 0xffffffffL;
+        }
+
+        int[] lookup(byte[] key) {
+            long slot = (hash(ByteBuffer.wrap(key), 0, key.length) & 0xffffffffL) & (capacity - 1);
+            int head;
+            while ((head = slots.getInt(slot)) != 0) {
+                if (fieldEquals(head - 1, column, key)) {
+                    int found = 0;
+                    for (int entry = head; entry != 0; entry = next.getInt(entry - 1)) {
+                        found++;
+                    }
+                    // the chain runs from the last to the first row
+                    int[] rows = new int[found];
+                    for (int entry = head; entry != 0; entry = next.getInt(entry - 1)) {
+                        rows[--found] = entry - 1;
+                    }
+                    return rows;
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            return new int[0];
+        }
+
+        void free() {
+            slots.free();
+            next.free();
+        }
+    }
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final Map<Integer, HashIndex> indexes = new HashMap<>();
+    private final OffHeapArray rowPositions = new OffHeapArray(Long.BYTES);
+    private int rowCount;
+    private boolean closed;
+
+    /**
+     * Collects all records into a new table; the table is freed if the records fail or the
+     * collecting is cancelled
+     *
+     * @param records the records to store
+     * @return the table containing all records
+     */
+    public static Uni<CsvTable> collect(Multi<List<String>> records) {
+        return Uni.createFrom().deferred(() -> {
+            var table = new CsvTable();
+            return records.collect().in(() -> table, CsvTable::add).onFailure()
+                    .invoke(table::close).onCancellation().invoke(table::close);
+        });
+    }
+
+    /**
+     * Appends a record to the table
+     *
+     * @param record the fields of the record
+     */
+    public void add(List<String> record) {
+        checkOpen();
+        int fieldCount = record.size();
+        byte[][] fields = new byte[fieldCount][];
+        int size = Integer.BYTES * (fieldCount + 1);
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = record.get(i).getBytes(StandardCharsets.UTF_8);
+            size += fields[i].length;
+        }
+
+        ByteBuffer segment = segmentFor(size);
+        int offset = segment.position();
+        segment.putInt(fieldCount);
+        int end = 0;
+        for (byte[] field : fields) {
+            end += field.length;
+            segment.putInt(end);
+        }
+        for (byte[] field : fields) {
+            segment.put(field);
+        }
+
+        if (rowCount == Integer.MAX_VALUE) {
+            throw new IllegalStateException("A table holds at most " + rowCount + " rows");
+        }
+        rowPositions.ensureCapacity(rowCount + 1L);
+        long position = ((long) (segments.size() - 1) << 32) | offset;
+        rowPositions.putLong(rowCount, position);
+        int row = rowCount++;
+        for (HashIndex index : indexes.values()) {
+            index.add(row);
+        }
+    }
+
+    public int getRowCount() {
+        checkOpen();
+        return rowCount;
+    }
+
+    /**
+     * @param row the zero based row number
+     * @return the number of fields of the row
+     */
+    public int getColumnCount(int row) {
+        long position = rowPosition(row);
+        return segments.get(segment(position)).getInt(offset(position));
+    }
+
+    /**
+     * @param row the zero based row number
+     * @param column the zero based column number
+     * @return the field's value
+     * @throws IndexOutOfBoundsException if the row doesn't exist or has no such column
+     */
+    public String get(int row, int column) {
+        long position = rowPosition(row);
+        ByteBuffer segment = segments.get(segment(position));
+        int offset = offset(position);
+        int fieldCount = segment.getInt(offset);
+        if (column < 0 || column >= fieldCount) {
+            throw new IndexOutOfBoundsException(
+                    "Row " + row + " has no column " + column + " (" + fieldCount + " columns)");
+        }
+        int start = fieldStart(segment, offset, fieldCount, column);
+        int end = fieldEnd(segment, offset, fieldCount, column);
+        byte[] bytes = new byte[end - start];
+        segment.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param row the zero based row number
+     * @return all fields of the row
+     */
+    public List<String> getRow(int row) {
+        int columns = getColumnCount(row);
+        List<String> fields = new ArrayList<>(columns);
+        for (int column = 0; column < columns; column++) {
+            fields.add(get(row, column));
+        }
+        return fields;
+    }
+
+    /**
+     * Creates a hash index on the column for {@link #lookup(int, String)}
+     *
+     * @param column the zero based column number
+     */
+    public void createIndex(int column) {
+        checkOpen();
+        if (column < 0) {
+            throw new IllegalArgumentException("The column index must not be negative: " + column);
+        }
+        indexes.computeIfAbsent(column, HashIndex::new);
+    }
+
+    /**
+     * Finds the rows whose field in the column equals the key; a row without the column matches
+     * an empty key
+     *
+     * @param column the zero based column number
+     * @param key the value to look up
+     * @return the ascending row numbers of the matching rows
+     * @throws IllegalStateException if there is no index on the column
+     */
+    public int[] lookup(int column, String key) {
+        checkOpen();
+        HashIndex index = indexes.get(column);
+        if (index == null) {
+            throw new IllegalStateException("There is no index on column " + column);
+        }
+        return index.lookup(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Frees the memory of the table; the table can't be used afterwards
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        indexes.values().forEach(HashIndex::free);
+        indexes.clear();
+        segments.forEach(CsvTable::free);
+        segments.clear();
+        rowPositions.free();
+        rowCount = 0;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The table has been closed");
+        }
+    }
+
+    private ByteBuffer segmentFor(int size) {
+        if (!segments.isEmpty()) {
+            ByteBuffer current = segments.get(segments.size() - 1);
+            if (current.remaining() >= size) {
+                return current;
+            }
+        }
+        ByteBuffer segment = ByteBuffer.allocateDirect(Math.max(SEGMENT_SIZE, size));
+        segments.add(segment);
+        return segment;
+    }
+
+    private long rowPosition(int row) {
+        checkOpen();
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(
+                    "Row " + row + " doesn't exist (" + rowCount + " rows)");
+        }
+        return rowPositions.getLong(row);
+    }
+
+    private boolean fieldsEqual(int row, int otherRow, int column) {
+        long position = rowPosition(row);
+        ByteBuffer segment = segments.get(segment(position));
+        int offset = offset(position);
+        int fieldCount = segment.getInt(offset);
+        long otherPosition = rowPosition(otherRow);
+        ByteBuffer otherSegment = segments.get(segment(otherPosition));
+        int otherOffset = offset(otherPosition);
+        int otherFieldCount = otherSegment.getInt(otherOffset);
+
+        int start = 0;
+        int end = 0;
+        if (column < fieldCount) {
+            start = fieldStart(segment, offset, fieldCount, column);
+            end = fieldEnd(segment, offset, fieldCount, column);
+        }
+        int otherStart = 0;
+        int otherEnd = 0;
+        if (column < otherFieldCount) {
+            otherStart = fieldStart(otherSegment, otherOffset, otherFieldCount, column);
+            otherEnd = fieldEnd(otherSegment, otherOffset, otherFieldCount, column);
+        }
+        if (end - start != otherEnd - otherStart) {
+            return false;
+        }
+        for (int i = 0; i < end - start; i++) {
+            if (segment.get(start + i) != otherSegment.get(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fieldEquals(int row, int column, byte[] key) {
+        long position = rowPosition(row);
+        ByteBuffer segment = segments.get(segment(position));
+        int offset = offset(position);
+        int fieldCount = segment.getInt(offset);
+        if (column >= fieldCount) {
+            return key.length == 0;
+        }
+        int start = fieldStart(segment, offset, fieldCount, column);
+        int end = fieldEnd(segment, offset, fieldCount, column);
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int segment(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    /**
+     * @return the absolute position of the column's first byte in the segment
+     */
+    private static int fieldStart(ByteBuffer segment, int offset, int fieldCount, int column) {
+        int data = offset + Integer.BYTES * (fieldCount + 1);
+        return column == 0 ? data : data + segment.getInt(offset + Integer.BYTES * column);
+    }
+
+    /**
+     * @return the absolute position after the column's last byte in the segment
+     */
+    private static int fieldEnd(ByteBuffer segment, int offset, int fieldCount, int column) {
+        int data = offset + Integer.BYTES * (fieldCount + 1);
+        return data + segment.getInt(offset + Integer.BYTES * (column + 1));
+    }
+
+    /**
+     * 32 bit FNV-1a of the bytes followed by the MurmurHash3 finalizer
+     */
+    private static int hash(ByteBuffer bytes, int start, int end) {
+        int hash = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            hash ^= bytes.get(i) & 0xff;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Frees the memory of a direct buffer immediately if possible
+     */
+    private static void free(ByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            // left to the garbage collector
+        }
+    }
+
+}
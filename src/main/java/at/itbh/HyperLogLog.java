@@ -0,0 +1,80 @@
+package at.itbh;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values in constant memory
+ *
+ * @see http://algo.inria.fr/flajolet/Publications/FlFuGaMe07.pdf
+ */
+class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision the number of bits used for addressing the registers; the sketch uses
+     *        2^precision bytes and has a relative standard error of 1.04 / sqrt(2^precision)
+     */
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("The precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    void add(CharSequence value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // position of the first set bit in the remaining bits
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1)))
+                + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return the relative standard error of the estimate
+     */
+    double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * 64 bit FNV-1a followed by the MurmurHash3 finalizer for a better distribution of the high
+     * bits
+     */
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
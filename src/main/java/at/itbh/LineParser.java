@@ -3,10 +3,18 @@ package at.itbh;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.subscription.MultiEmitter;
@@ -24,6 +32,10 @@ import io.vertx.mutiny.core.buffer.Buffer;
  * return followed immediately by a line feed "\r\n" (U+000D U+000A). The line terminator isn't part
  * of the returned line.
  * <p>
+ * By default the lines are split on the thread emitting the data, for {@link Mode#ASYNC_FILE} this
+ * is the event loop. Use {@link #setWorkerPool(ParserWorkerPool)} to only read on the event loop
+ * and split the lines on a worker pool.
+ * </p>
  */
 public class LineParser {
 
@@ -45,6 +57,7 @@ public class LineParser {
     private final Optional<Integer> readBufferSize;
 
     private Mode mode = Mode.ASYNC_FILE;
+    private Optional<ParserWorkerPool> workerPool = Optional.empty();
 
     public LineParser(Vertx vertx, Charset encoding) {
         this.vertx = vertx;
@@ -66,9 +79,42 @@ public class LineParser {
         this.mode = mode;
     }
 
+    public Optional<ParserWorkerPool> getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Moves splitting to the worker pool
+     *
+     * <p>
+     * The read buffers are handed over to the pool through the bounded queue of
+     * {@link Multi#emitOn(java.util.concurrent.Executor)}. Splitting only requests further buffers
+     * when the subscriber has requested further lines, so reading pauses once the queue is full
+     * and memory stays bounded with a slow subscriber. Lines are emitted on the pool's threads.
+     * The blocking reading of {@link Mode#NIO} is moved to the pool as well. Every parsed stream
+     * occupies one thread of the pool while it is parsed, see {@link ParserWorkerPool}.
+     * </p>
+     * 
+     * @param workerPool the pool to use or null for splitting on the emitting thread
+     */
+    public void setWorkerPool(ParserWorkerPool workerPool) {
+        this.workerPool = Optional.ofNullable(workerPool);
+    }
+
     public Multi<String> parse(String data) {
+        return parse(data, null);
+    }
+
+    /**
+     * Parses the data to the lines matching the filter
+     * 
+     * @param data the data to parse
+     * @param lineFilter creates the filter for a subscription, see {@link #parse(File, Supplier)}
+     * @return the matching lines
+     */
+    Multi<String> parse(String data, Supplier<Predicate<CharSequence>> lineFilter) {
         Buffer buffer = Buffer.buffer().appendString(data, encoding.name());
-        return parse(buffer);
+        return parse(Multi.createFrom().item(buffer), lineFilter);
     }
 
     public Multi<String> parse(Buffer data) {
@@ -76,17 +122,39 @@ public class LineParser {
     }
 
     public Multi<String> parse(File file) throws IOException {
+        return parse(file, null);
+    }
+
+    /**
+     * Parses the file to the lines matching the filter
+     * 
+     * <p>
+     * In {@link Mode#ASYNC_FILE} mode the filter is evaluated on the decoded line before it is
+     * converted to a {@link String}, so dropped lines aren't copied again. The
+     * {@link CharSequence} passed to the filter is only valid while the filter is evaluated. In
+     * {@link Mode#NIO} mode the lines are read as {@link String} and filtered afterwards.
+     * </p>
+     * 
+     * @param file the file to parse
+     * @param lineFilter creates the filter for a subscription, so filters may keep state per
+     *        subscription; null for all lines
+     * @return the matching lines
+     * @throws IOException if the file doesn't exist
+     */
+    Multi<String> parse(File file, Supplier<Predicate<CharSequence>> lineFilter)
+            throws IOException {
         if (!file.exists()) {
             throw new FileNotFoundException(file.getPath());
         }
         if (getMode() == Mode.ASYNC_FILE) {
-            return parseFileWithVertxAsyncFile(file);
+            return parseFileWithVertxAsyncFile(file, lineFilter);
         } else {
-            return parseFileWithNio(file);
+            return parseFileWithNio(file, lineFilter);
         }
     }
 
-    private Multi<String> parseFileWithVertxAsyncFile(File file) {
+    private Multi<String> parseFileWithVertxAsyncFile(File file,
+            Supplier<Predicate<CharSequence>> lineFilter) {
         var path = file.getPath();
         var fileHandle =
                 vertx.fileSystem().open(path, new OpenOptions().setRead(true).setCreate(false));
@@ -96,19 +164,28 @@ public class LineParser {
             }
             return asyncFile.toMulti();
         });
-        return parse(fileContents);
+        return parse(fileContents, lineFilter);
     }
 
-    private Multi<String> parseFileWithNio(File file) throws IOException {
+    private Multi<String> parseFileWithNio(File file,
+            Supplier<Predicate<CharSequence>> lineFilter) throws IOException {
         var lines = Files.lines(Paths.get(file.getPath()), encoding);
-        return Multi.createFrom().emitter(emitter -> {
-            Multi.createFrom().items(lines).onCompletion().invoke(emitter::complete).subscribe()
-                    .with(line -> {
-                        if (line.length() > 0) {
-                            emitter.emit(line);
-                        }
-                    });
-        });
+        // the stream is only read as far as requested
+        Multi<String> parsed = Multi.createFrom().items(lines).select()
+                .where(line -> line.length() > 0).onTermination().invoke(lines::close);
+        if (lineFilter != null) {
+            var nonEmpty = parsed;
+            parsed = Multi.createFrom().deferred(() -> {
+                var filter = lineFilter.get();
+                return nonEmpty.select().where(filter::test);
+            });
+        }
+        if (workerPool.isPresent()) {
+            // subscribing and all further reads happen on the pool
+            var executor = workerPool.get().getExecutor();
+            return parsed.runSubscriptionOn(executor).emitOn(executor);
+        }
+        return parsed;
     }
 
     /**
@@ -125,7 +202,18 @@ public class LineParser {
     }
 
     public Multi<String> parse(Multi<Buffer> buffers) {
-        return parseWithString(buffers);
+        return parse(buffers, null);
+    }
+
+    private Multi<String> parse(Multi<Buffer> buffers,
+            Supplier<Predicate<CharSequence>> lineFilter) {
+        if (workerPool.isPresent()) {
+            // requests run on the pool too, as they split the lines of the buffered content
+            var executor = workerPool.get().getExecutor();
+            return parseWithString(buffers.emitOn(executor), lineFilter)
+                    .runSubscriptionOn(executor);
+        }
+        return parseWithString(buffers, lineFilter);
         // return parseCharByChar(buffers);
     }
 
@@ -171,34 +259,130 @@ public class LineParser {
     /**
      * Parses the data in the buffers to lines
      * 
+     * <p>
+     * Honors the downstream demand: a buffer is only requested once all lines of the previous
+     * buffer have been requested, so a slow subscriber pauses the reading instead of lines piling
+     * up in memory.
+     * </p>
+     * 
      * @param buffers a sequence of bytes which can can be interpreted as a text by the specified
      *        character encoding
      * @return the lines
      */
     Multi<String> parseWithString(Multi<Buffer> buffers) {
-        final StringBuilder tempLine = new StringBuilder();
+        return parseWithString(buffers, null);
+    }
 
-        // emit line by line
-        return Multi.createFrom().emitter(emitter -> {
-            buffers
-                    // output the last line
-                    .onCompletion().invoke(() -> {
-                        emitLine(emitter, tempLine);
-                        emitter.complete();
-                    })
-                    // read all buffers and build lines
-                    .subscribe().with(buffer -> {
-                        String content = buffer.toString(encoding);
-                        long newLineCount = content.length() - content.replace("\n", "").length();
-                        final long[] newLineCounter = {0};
-                        Multi.createFrom().items(content.lines()).subscribe().with(line -> {
-                            tempLine.append(line);
-                            if (++newLineCounter[0] <= newLineCount) {
-                                emitLine(emitter, tempLine);
-                            }
-                        });
-                    });
+    /**
+     * Parses the data in the buffers to the lines matching the filter
+     * 
+     * @param buffers a sequence of bytes which can can be interpreted as a text by the specified
+     *        character encoding
+     * @param lineFilter creates the filter evaluated on every line before it is converted to a
+     *        {@link String}; null for all lines
+     * @return the matching lines
+     */
+    Multi<String> parseWithString(Multi<Buffer> buffers,
+            Supplier<Predicate<CharSequence>> lineFilter) {
+        return Multi.createFrom().deferred(() -> {
+            final StringBuilder tempLine = new StringBuilder();
+            final var decoder = new BufferDecoder();
+            final Predicate<CharSequence> filter = lineFilter != null ? lineFilter.get() : null;
+            // read all buffers and build lines, then output the last line
+            return Multi.createBy().concatenating().streams(
+                    buffers.onItem().transformToIterable(
+                            buffer -> splitLines(decoder.decode(buffer, false), tempLine, filter)),
+                    Multi.createFrom().deferred(() -> {
+                        tempLine.append(decoder.decode(Buffer.buffer(), true));
+                        return Multi.createFrom().iterable(completeLines(tempLine, filter));
+                    }));
         });
     }
 
+    /**
+     * Decodes a sequence of buffers; a character split between two buffers is decoded once the
+     * buffer containing its last byte is decoded
+     * 
+     * <p>
+     * The buffers are decoded in place; only the bytes of a split character are kept and the
+     * output buffer is reused, so decoding copies the content once to the returned {@link String}.
+     * </p>
+     */
+    private class BufferDecoder {
+        private final CharsetDecoder decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // the leading bytes of a character split between two buffers
+        private final ByteBuffer remainder = ByteBuffer.allocate(16);
+        private CharBuffer out = CharBuffer.allocate(0);
+
+        String decode(Buffer buffer, boolean endOfInput) {
+            ByteBuffer in = buffer.getByteBuf().nioBuffer();
+            int capacity =
+                    (int) ((remainder.position() + in.remaining()) * decoder.maxCharsPerByte()) + 1;
+            if (out.capacity() < capacity) {
+                out = CharBuffer.allocate(capacity);
+            }
+            out.clear();
+            // complete the split character byte by byte
+            while (remainder.position() > 0 && in.hasRemaining()) {
+                remainder.put(in.get()).flip();
+                decoder.decode(remainder, out, false);
+                remainder.compact();
+            }
+            if (remainder.position() > 0) {
+                // the buffer didn't complete the character
+                remainder.flip();
+                decoder.decode(remainder, out, endOfInput);
+                remainder.compact();
+            } else {
+                decoder.decode(in, out, endOfInput);
+                remainder.put(in);
+            }
+            if (endOfInput) {
+                decoder.flush(out);
+            }
+            return out.flip().toString();
+        }
+    }
+
+    /**
+     * Splits the content to the lines which are complete
+     * 
+     * @param content the decoded content of a buffer
+     * @param tempLine the incomplete last line of the previous buffer; is replaced by the
+     *        incomplete last line of this buffer
+     * @param filter the filter the lines have to match or null for all lines
+     * @return the complete non empty lines matching the filter
+     */
+    private List<String> splitLines(String content, StringBuilder tempLine,
+            Predicate<CharSequence> filter) {
+        long newLineCount = content.length() - content.replace("\n", "").length();
+        final long[] newLineCounter = {0};
+        List<String> lines = new ArrayList<>();
+        content.lines().forEach(line -> {
+            tempLine.append(line);
+            if (++newLineCounter[0] <= newLineCount) {
+                lines.addAll(completeLines(tempLine, filter));
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * @return the line if not empty and matching the filter; the line is cleared
+     */
+    private List<String> completeLines(StringBuilder line, Predicate<CharSequence> filter) {
+        if (line.length() == 0) {
+            return List.of();
+        }
+        if (filter != null && !filter.test(line)) {
+            line.setLength(0);
+            return List.of();
+        }
+        String complete = line.toString();
+        line.setLength(0);
+        return List.of(complete);
+    }
+
 }
@@ -0,0 +1,91 @@
+package at.itbh;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.WorkerExecutor;
+
+/**
+ * A named vert.x worker pool for the CPU bound parsing stages (decoding, line splitting and
+ * tokenizing) which keeps them off the event loop
+ *
+ * <p>
+ * The pool is configured in application.properties:
+ * </p>
+ * <ul>
+ * <li>{@code csv-parser.worker-pool.name}: the name of the shared worker pool; the pool's threads
+ * are named after it</li>
+ * <li>{@code csv-parser.worker-pool.size}: the number of threads of the pool</li>
+ * <li>{@code csv-parser.worker-pool.max-execute-time}: the time after which vert.x' blocked thread
+ * checker warns about a task of the pool</li>
+ * </ul>
+ * <p>
+ * A parsed stream is drained by a single task which runs as long as the subscriber keeps
+ * requesting lines, so every stream being parsed occupies one thread of the pool until it
+ * completes or the subscriber stops requesting. The pool size therefore limits the number of
+ * streams parsed in parallel, and the maximum execute time has to cover parsing the largest
+ * expected file.
+ * </p>
+ * 
+ * @see LineParser#setWorkerPool(ParserWorkerPool)
+ */
+@ApplicationScoped
+public class ParserWorkerPool {
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "csv-parser.worker-pool.name", defaultValue = "csv-parser")
+    String name;
+
+    @ConfigProperty(name = "csv-parser.worker-pool.size", defaultValue = "4")
+    int size;
+
+    @ConfigProperty(name = "csv-parser.worker-pool.max-execute-time", defaultValue = "1h")
+    Duration maxExecuteTime;
+
+    private WorkerExecutor workerExecutor;
+    private Executor executor;
+
+    @PostConstruct
+    void init() {
+        workerExecutor = vertx.createSharedWorkerExecutor(name, size, maxExecuteTime.toMillis(),
+                TimeUnit.MILLISECONDS);
+        // not ordered: the callers already serialize the work they submit
+        executor = command -> workerExecutor.getDelegate().executeBlocking(promise -> {
+            command.run();
+            promise.complete();
+        }, false);
+    }
+
+    @PreDestroy
+    void close() {
+        workerExecutor.closeAndAwait();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Duration getMaxExecuteTime() {
+        return maxExecuteTime;
+    }
+
+    /**
+     * @return an {@link Executor} running the submitted tasks on the worker pool
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+}
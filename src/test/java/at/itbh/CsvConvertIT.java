@@ -0,0 +1,11 @@
+package at.itbh;
+
+import io.quarkus.test.junit.main.QuarkusMainIntegrationTest;
+
+/**
+ * Runs the {@link CsvConvertTest} cases against the packaged application, e.g. the native image
+ * built by {@code ./mvnw verify -Pnative}
+ */
+@QuarkusMainIntegrationTest
+public class CsvConvertIT extends CsvConvertTest {
+}
@@ -0,0 +1,58 @@
+package at.itbh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import io.quarkus.test.junit.main.Launch;
+import io.quarkus.test.junit.main.LaunchResult;
+import io.quarkus.test.junit.main.QuarkusMainTest;
+
+@QuarkusMainTest
+public class CsvConvertTest {
+
+    @Test
+    @Launch(value = {"src/test/resources/LineParser_test_file.txt", "target/CsvConvertTest.csv",
+            " ", ";"})
+    void testConvert(LaunchResult result) throws IOException {
+        Assertions.assertEquals(CsvConvert.EXIT_OK, result.exitCode());
+        Assertions.assertEquals(Arrays.asList("First;line", "Second;line", "Third;line"),
+                Files.readAllLines(Paths.get("target/CsvConvertTest.csv"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @Launch(value = {"src/test/resources/CsvConvert_test_file.txt",
+            "target/CsvConvertTest_quoted.csv", ";", ","})
+    void testConvertQuotesFields(LaunchResult result) throws IOException {
+        Assertions.assertEquals(CsvConvert.EXIT_OK, result.exitCode());
+        Assertions.assertEquals(Arrays.asList("a,\"1,5\",,", ",,,", "b,\"say \"\"hi\"\"\",x"),
+                Files.readAllLines(Paths.get("target/CsvConvertTest_quoted.csv"),
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testQuote() {
+        Assertions.assertEquals("plain", CsvConvert.quote("plain", ','));
+        Assertions.assertEquals("\"1,5\"", CsvConvert.quote("1,5", ','));
+        Assertions.assertEquals("1;5", CsvConvert.quote("1;5", ','));
+        Assertions.assertEquals("\"a\nb\"", CsvConvert.quote("a\nb", ','));
+        Assertions.assertEquals("\"\"\"\"", CsvConvert.quote("\"", ','));
+    }
+
+    @Test
+    @Launch(value = {"src/test/resources/LineParser_test_file.txt"},
+            exitCode = CsvConvert.EXIT_USAGE)
+    void testMissingOutput(LaunchResult result) {
+        Assertions.assertTrue(result.getErrorOutput().startsWith("Usage"));
+    }
+
+    @Test
+    @Launch(value = {"src/test/resources/does_not_exist.txt", "target/CsvConvertTest.csv"},
+            exitCode = CsvConvert.EXIT_IO_ERROR)
+    void testMissingInput(LaunchResult result) {
+        Assertions.assertTrue(result.getErrorOutput().contains("does_not_exist.txt"));
+    }
+}
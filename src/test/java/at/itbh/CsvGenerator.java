@@ -0,0 +1,272 @@
+package at.itbh;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates delimited test data of a configurable size and shape
+ *
+ * <p>
+ * Field values are drawn from a pre-encoded pool, so generating is I/O bound. Values never contain
+ * the delimiter or line terminators and lines are never empty, so every generated row is one line
+ * for the {@link LineParser} and has exactly {@link #setColumns(int)} fields for the
+ * {@link CsvParser} in {@link CsvParser.Mode#NOT_QUOTED} mode.
+ * </p>
+ * <p>
+ * Can be run from the command line: {@code java src/test/java/at/itbh/CsvGenerator.java <file>
+ * <size in MB> [columns]}
+ * </p>
+ */
+public class CsvGenerator {
+
+    private static final int POOL_SIZE = 1024;
+    private static final String[] MULTI_BYTE_WORDS =
+            {"Grüße", "Ölförderung", "€uro", "日本語", "Ελληνικά", "кириллица", "😀emoji"};
+
+    /**
+     * The generated file
+     */
+    public static class Result {
+        final File file;
+        final long rows;
+        final long bytes;
+        final long checksum;
+
+        Result(File file, long rows, long bytes, long checksum) {
+            this.file = file;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.checksum = checksum;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the checksum of all lines without their terminators, see
+         *         {@link CsvGenerator#checksum(long, int)}
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+
+    private long size = 1024 * 1024;
+    private int columns = 10;
+    private char delimiter = ',';
+    private boolean quoted = false;
+    private boolean multiByte = false;
+    private boolean crlf = false;
+    private int longLineLength = 0;
+    private int longLineInterval = 1000;
+    private long seed = 42;
+
+    /**
+     * @param size the minimum size of the file in bytes; the last line may exceed it
+     */
+    public CsvGenerator setSize(long size) {
+        this.size = size;
+        return this;
+    }
+
+    public CsvGenerator setColumns(int columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    public CsvGenerator setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param quoted if every other field is enclosed in double quotes
+     */
+    public CsvGenerator setQuoted(boolean quoted) {
+        this.quoted = quoted;
+        return this;
+    }
+
+    /**
+     * @param multiByte if field values contain characters encoded with 2 to 4 bytes in UTF-8
+     */
+    public CsvGenerator setMultiByte(boolean multiByte) {
+        this.multiByte = multiByte;
+        return this;
+    }
+
+    /**
+     * @param crlf if lines are terminated by "\r\n" instead of "\n"
+     */
+    public CsvGenerator setCrlf(boolean crlf) {
+        this.crlf = crlf;
+        return this;
+    }
+
+    /**
+     * @param longLineLength the length of the first field of every long line; 0 for no long lines
+     * @param longLineInterval every how many lines a long line is written
+     */
+    public CsvGenerator setLongLines(int longLineLength, int longLineInterval) {
+        this.longLineLength = longLineLength;
+        this.longLineInterval = longLineInterval;
+        return this;
+    }
+
+    public CsvGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public Result generate(File file) throws IOException {
+        var random = new SplittableRandom(seed);
+        String[] values = buildPool(random);
+        byte[][] pool = new byte[POOL_SIZE][];
+        int[] hashes = new int[POOL_SIZE];
+        int[] powers = new int[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            hashes[i] = values[i].hashCode();
+            powers[i] = pow31(values[i].length());
+        }
+        String longValue = longLineLength > 0 ? buildLongField(random) : null;
+        byte[] longField = longValue != null ? longValue.getBytes(StandardCharsets.UTF_8) : null;
+        int longHash = longValue != null ? longValue.hashCode() : 0;
+        int longPower = longValue != null ? pow31(longValue.length()) : 0;
+        byte[] terminator = (crlf ? "\r\n" : "\n").getBytes(StandardCharsets.UTF_8);
+        byte separator = (byte) delimiter;
+
+        long rows = 0;
+        long bytes = 0;
+        long checksum = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20)) {
+            while (bytes < size) {
+                boolean longLine = longField != null && rows % longLineInterval == 0;
+                int lineHash = 0;
+                for (int column = 0; column < columns; column++) {
+                    if (column > 0) {
+                        out.write(separator);
+                        bytes++;
+                        lineHash = lineHash * 31 + delimiter;
+                    }
+                    if (longLine && column == 0) {
+                        out.write(longField);
+                        bytes += longField.length;
+                        lineHash = lineHash * longPower + longHash;
+                    } else {
+                        int index = random.nextInt(POOL_SIZE);
+                        out.write(pool[index]);
+                        bytes += pool[index].length;
+                        lineHash = lineHash * powers[index] + hashes[index];
+                    }
+                }
+                out.write(terminator);
+                bytes += terminator.length;
+                checksum = checksum(checksum, lineHash);
+                rows++;
+            }
+        }
+        return new Result(file, rows, bytes, checksum);
+    }
+
+    /**
+     * Adds a line to the checksum of the previous lines
+     *
+     * @param checksum the checksum of the previous lines
+     * @param lineHash the {@link String#hashCode()} of the line without its terminator
+     * @return the checksum including the line
+     */
+    public static long checksum(long checksum, int lineHash) {
+        return checksum * 31 + lineHash;
+    }
+
+    /**
+     * Computes the {@link String#hashCode()} of the record's fields joined by the delimiter
+     * without joining them
+     */
+    public static int lineHash(List<String> fields, char delimiter) {
+        int hash = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                hash = hash * 31 + delimiter;
+            }
+            String field = fields.get(i);
+            hash = hash * pow31(field.length()) + field.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * @return 31^exponent with int overflow like in {@link String#hashCode()}
+     */
+    static int pow31(int exponent) {
+        int result = 1;
+        int base = 31;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private String[] buildPool(SplittableRandom random) {
+        String[] pool = new String[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            var value = new StringBuilder();
+            // never empty, so a line can't consist of delimiters only
+            int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                value.append((char) ('a' + random.nextInt(26)));
+            }
+            if (multiByte && i % 2 == 0) {
+                value.append(MULTI_BYTE_WORDS[random.nextInt(MULTI_BYTE_WORDS.length)]);
+            }
+            if (quoted && i % 2 == 0) {
+                value.insert(0, '"').append('"');
+            }
+            pool[i] = value.toString();
+        }
+        return pool;
+    }
+
+    private String buildLongField(SplittableRandom random) {
+        var field = new StringBuilder(longLineLength);
+        for (int i = 0; i < longLineLength; i++) {
+            field.append((char) ('a' + random.nextInt(26)));
+        }
+        return field.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: <file> <size in MB> [columns]");
+            System.exit(1);
+        }
+        var generator = new CsvGenerator().setSize(Long.parseLong(args[1]) * 1024 * 1024);
+        if (args.length > 2) {
+            generator.setColumns(Integer.parseInt(args[2]));
+        }
+        var result = generator.generate(new File(args[0]));
+        System.out.println("Generated " + result.getRows() + " rows, " + result.getBytes()
+                + " bytes to " + result.getFile().getPath());
+    }
+
+}
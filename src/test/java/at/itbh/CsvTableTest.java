@@ -0,0 +1,96 @@
+package at.itbh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Arrays;
+import javax.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.core.Vertx;
+
+@QuarkusTest
+public class CsvTableTest {
+
+    @Inject
+    Vertx vertx;
+
+    @Test
+    void testParseToTable() throws IOException {
+        var parser = new CsvParser(vertx, Charset.forName("utf8"), ' ');
+        try (var table =
+                parser.parseToTable(new File("src/test/resources/LineParser_test_file.txt"),
+                        new CsvParser.Header()).await().atMost(Duration.ofSeconds(20))) {
+            Assertions.assertEquals(3, table.getRowCount());
+            Assertions.assertEquals(Arrays.asList("Second", "line"), table.getRow(1));
+            Assertions.assertEquals("Third", table.get(2, 0));
+        }
+    }
+
+    @Test
+    void testRandomAccess() {
+        try (var table = new CsvTable()) {
+            for (int i = 0; i < 100000; i++) {
+                table.add(Arrays.asList(Integer.toString(i), i % 2 == 0 ? "äöü€" : ""));
+            }
+            table.add(Arrays.asList("x".repeat(CsvTable.SEGMENT_SIZE * 2)));
+            Assertions.assertEquals(100001, table.getRowCount());
+            Assertions.assertEquals("4711", table.get(4711, 0));
+            Assertions.assertEquals("äöü€", table.get(4710, 1));
+            Assertions.assertEquals("", table.get(4711, 1));
+            Assertions.assertEquals(1, table.getColumnCount(100000));
+            Assertions.assertEquals(CsvTable.SEGMENT_SIZE * 2, table.get(100000, 0).length());
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> table.get(100001, 0));
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> table.get(100000, 1));
+        }
+    }
+
+    @Test
+    void testLookup() {
+        try (var table = new CsvTable()) {
+            table.add(Arrays.asList("1", "Europe"));
+            table.createIndex(1);
+            for (int i = 2; i < 10000; i++) {
+                table.add(Arrays.asList(Integer.toString(i), i % 3 == 0 ? "Europe" : "Asia"));
+            }
+            table.add(Arrays.asList("10000"));
+            Assertions.assertEquals(3334, table.lookup(1, "Europe").length);
+            Assertions.assertArrayEquals(new int[] {0, 2, 5},
+                    Arrays.copyOf(table.lookup(1, "Europe"), 3));
+            Assertions.assertArrayEquals(new int[] {9999}, table.lookup(1, ""));
+            Assertions.assertEquals(0, table.lookup(1, "Africa").length);
+            Assertions.assertThrows(IllegalStateException.class, () -> table.lookup(0, "1"));
+        }
+    }
+
+    @Test
+    void testLookupManyDuplicates() {
+        try (var table = new CsvTable()) {
+            table.createIndex(1);
+            // the row index spans several segments
+            for (int i = 0; i < 500000; i++) {
+                table.add(Arrays.asList(Integer.toString(i), i % 2 == 0 ? "Europe" : "Asia"));
+            }
+            table.createIndex(0);
+            var asia = table.lookup(1, "Asia");
+            Assertions.assertEquals(250000, asia.length);
+            Assertions.assertEquals(1, asia[0]);
+            Assertions.assertEquals(499999, asia[asia.length - 1]);
+            Assertions.assertArrayEquals(new int[] {424242}, table.lookup(0, "424242"));
+            Assertions.assertEquals("499998", table.get(499998, 0));
+        }
+    }
+
+    @Test
+    void testClose() {
+        var table = new CsvTable();
+        table.add(Arrays.asList("a", "b"));
+        table.close();
+        table.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> table.get(0, 0));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> table.add(Arrays.asList("c")));
+    }
+}
@@ -1,6 +1,7 @@
 package at.itbh;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import javax.inject.Inject;
 import org.junit.jupiter.api.Test;
 import io.quarkus.test.junit.QuarkusTest;
@@ -40,4 +41,19 @@ public class LineParserBufferTest {
                                 "line two", "line three", "line four");
         }
 
+        @Test
+        public void testMultiByteCharactersSplitBetweenBuffers() {
+                var parser = new LineParser(vertx, StandardCharsets.UTF_8);
+                var bytes = "Grüße €uro\n日本語 😀\n".getBytes(StandardCharsets.UTF_8);
+                // one buffer per byte
+                var buffers = new Buffer[bytes.length];
+                for (int i = 0; i < bytes.length; i++) {
+                        buffers[i] = Buffer.buffer(new byte[] {bytes[i]});
+                }
+                var assertSubscriber = parser.parse(Multi.createFrom().items(buffers))
+                                .subscribe().withSubscriber(AssertSubscriber.create(2));
+                assertSubscriber.awaitCompletion().assertCompleted().assertItems("Grüße €uro",
+                                "日本語 😀");
+        }
+
 }
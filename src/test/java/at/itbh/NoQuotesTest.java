@@ -3,9 +3,11 @@ package at.itbh;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.util.Arrays;
 import javax.inject.Inject;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import io.quarkus.test.junit.QuarkusTest;
 import io.smallrye.mutiny.helpers.test.AssertSubscriber;
@@ -29,6 +31,18 @@ public class NoQuotesTest {
                 .assertLastItem(Arrays.asList(new String[] {"test3.1 ", " test3.2 ", " test3.3"}));
     }
 
+    @Test
+    void testHeaderNotEmitted() {
+        var parser = new CsvParser(vertx, Charset.defaultCharset());
+        var header = new CsvParser.Header();
+        header.setContainsHeader(true);
+        parser.parseToList("id,name\n1,a\n2,b", header).subscribe()
+                .withSubscriber(AssertSubscriber.create(Long.MAX_VALUE)).awaitCompletion()
+                .assertItems(Arrays.asList(new String[] {"1", "a"}),
+                        Arrays.asList(new String[] {"2", "b"}));
+        Assertions.assertArrayEquals(new String[] {"id", "name"}, header.getHeader());
+    }
+
     @Test
     void testLargeFile() throws IOException {
         var parser = new CsvParser(vertx, Charset.defaultCharset());
@@ -41,4 +55,66 @@ public class NoQuotesTest {
                         "Vegetables", "Offline", "L", "6/5/2014", "943440902", "6/30/2014", "3983",
                         "154.06", "90.93", "613620.98", "362174.19", "251446.79"}));
     }
+
+    @Test
+    void testFilter() {
+        var parser = new CsvParser(vertx, Charset.defaultCharset());
+        parser.addFilter(2, field -> "Europe".contentEquals(field))
+                .addFilter(0, field -> field.length() > 0 && field.charAt(0) == '1');
+        String data = "1,a,Europe,x\n2,b,Europe,y\n10,c,Asia,z\n11,d,Europe\n12,e\n";
+        // the filtered lines after the last match are only read on demand
+        parser.parseToList(data, new CsvParser.Header()).subscribe()
+                .withSubscriber(AssertSubscriber.create(Long.MAX_VALUE)).awaitCompletion()
+                .assertItems(Arrays.asList(new String[] {"1", "a", "Europe", "x"}),
+                        Arrays.asList(new String[] {"11", "d", "Europe"}));
+    }
+
+    @Test
+    void testFilterWithHeader() throws IOException {
+        String data = "id,region\n1,Europe\n2,Asia\n3,Europe";
+        var file = new File("target/NoQuotesTest_filter.csv");
+        Files.writeString(file.toPath(), data);
+        for (var mode : LineParser.Mode.values()) {
+            var parser = new CsvParser(vertx, Charset.defaultCharset());
+            parser.lineParser.setMode(mode);
+            parser.addFilter(1, field -> "Europe".contentEquals(field));
+            var header = new CsvParser.Header();
+            header.setContainsHeader(true);
+            parser.parseToList(file, header).subscribe()
+                    .withSubscriber(AssertSubscriber.create(Long.MAX_VALUE)).awaitCompletion()
+                    .assertItems(Arrays.asList(new String[] {"1", "Europe"}),
+                            Arrays.asList(new String[] {"3", "Europe"}));
+        }
+
+        // the header of a String is read synchronously
+        var parser = new CsvParser(vertx, Charset.defaultCharset());
+        parser.addFilter(1, field -> "Europe".contentEquals(field));
+        var header = new CsvParser.Header();
+        header.setContainsHeader(true);
+        parser.parseToList(data, header).subscribe()
+                .withSubscriber(AssertSubscriber.create(Long.MAX_VALUE)).awaitCompletion()
+                .assertItems(Arrays.asList(new String[] {"1", "Europe"}),
+                        Arrays.asList(new String[] {"3", "Europe"}));
+        Assertions.assertArrayEquals(new String[] {"id", "region"}, header.getHeader());
+    }
+
+    @Test
+    void testFilterView() {
+        var parser = new CsvParser(vertx, Charset.defaultCharset());
+        parser.addFilter(1, field -> field.toString().equals("b2"));
+        var view = new CsvParser.FieldView();
+        Assertions.assertTrue(parser.matches("a1,b2,c3", view));
+        Assertions.assertEquals("b2", view.toString());
+        Assertions.assertFalse(parser.matches("a1,b3,c3", view));
+        Assertions.assertFalse(parser.matches("a1", view));
+    }
+
+    @Test
+    void testTrailingEmptyFields() {
+        var parser = new CsvParser(vertx, Charset.defaultCharset(), ';');
+        parser.parseToList("a;1,5;;\n;;;", new CsvParser.Header()).subscribe()
+                .withSubscriber(AssertSubscriber.create(2)).awaitCompletion()
+                .assertItems(Arrays.asList(new String[] {"a", "1,5", "", ""}),
+                        Arrays.asList(new String[] {"", "", "", ""}));
+    }
 }
@@ -0,0 +1,103 @@
+package at.itbh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import javax.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.core.Vertx;
+
+@QuarkusTest
+public class ProfileTest {
+
+    static final File FILE = new File("target/ProfileTest.csv");
+    static final int LINES = 100000;
+
+    @Inject
+    Vertx vertx;
+
+    /**
+     * Writes lines of equal length so the row count of the samples is exact
+     */
+    @BeforeAll
+    static void setup() throws IOException {
+        try (var writer = new PrintWriter(FILE, "UTF-8")) {
+            for (int i = 0; i < LINES; i++) {
+                if (i % 4 == 0) {
+                    writer.printf("%06d,R%d,,%03d\n", i, i % 5, i % 100);
+                } else {
+                    writer.printf("%06d,R%d,x,%02d\n", i, i % 5, i % 100);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testExact() throws IOException {
+        var parser = new CsvParser(vertx, Charset.forName("utf8"));
+        var profile = parser.profile(FILE, new CsvParser.Header()).await()
+                .atMost(Duration.ofSeconds(20));
+        Assertions.assertTrue(profile.isExact());
+        Assertions.assertEquals(LINES, profile.getRowCount());
+        Assertions.assertEquals(LINES, profile.getSampledRows());
+        Assertions.assertEquals(4, profile.getColumns().size());
+
+        var id = profile.getColumns().get(0);
+        Assertions.assertFalse(id.isDistinctLowerBound());
+        Assertions.assertEquals(LINES, id.getDistinct(), LINES * 3 * id.getDistinctError());
+        Assertions.assertTrue(id.isNumeric());
+        Assertions.assertEquals(0, id.getNumericMin());
+        Assertions.assertEquals(LINES - 1, id.getNumericMax());
+
+        var region = profile.getColumns().get(1);
+        Assertions.assertEquals(5, region.getDistinct());
+        Assertions.assertFalse(region.isNumeric());
+        Assertions.assertEquals("R0", region.getMin());
+        Assertions.assertEquals("R4", region.getMax());
+        Assertions.assertEquals(0, region.getNullRatio());
+
+        Assertions.assertEquals(0.25, profile.getColumns().get(2).getNullRatio(), 0.0001);
+    }
+
+    @Test
+    void testSampled() throws IOException {
+        var parser = new CsvParser(vertx, Charset.forName("utf8"));
+        var profile = parser.profile(FILE, new CsvParser.Header(), 4).await()
+                .atMost(Duration.ofSeconds(20));
+        Assertions.assertFalse(profile.isExact());
+        Assertions.assertEquals(LINES, profile.getRowCount());
+        Assertions.assertEquals(0, profile.getRowCountError(), 0.0001);
+        Assertions.assertTrue(profile.getSampledRows() < LINES);
+        Assertions.assertEquals(5, profile.getColumns().get(1).getDistinct());
+        Assertions.assertTrue(profile.getColumns().get(0).isDistinctLowerBound());
+        Assertions.assertTrue(Double.isNaN(profile.getColumns().get(0).getDistinctError()));
+        // the samples don't overlap, so no row is counted twice
+        Assertions.assertEquals(profile.getColumns().get(0).getDistinct(),
+                profile.getSampledRows(), profile.getSampledRows() * 0.03);
+        Assertions.assertEquals(0.25, profile.getColumns().get(2).getNullRatio(), 0.01);
+    }
+
+    @Test
+    void testSampledHeader() throws IOException {
+        var parser = new CsvParser(vertx, Charset.forName("utf8"));
+        var header = new CsvParser.Header();
+        header.setContainsHeader(true);
+        var profile = parser.profile(FILE, header, 4).await().atMost(Duration.ofSeconds(20));
+        Assertions.assertEquals(LINES - 1, profile.getRowCount());
+        Assertions.assertArrayEquals(new String[] {"000000", "R0", "", "000"}, header.getHeader());
+    }
+
+    @Test
+    void testSampledSmallFile() throws IOException {
+        var parser = new CsvParser(vertx, Charset.forName("utf8"));
+        var profile = parser.profile(new File("src/test/resources/LineParser_test_file.txt"),
+                new CsvParser.Header(), 4).await().atMost(Duration.ofSeconds(20));
+        Assertions.assertTrue(profile.isExact());
+        Assertions.assertEquals(3, profile.getRowCount());
+    }
+}
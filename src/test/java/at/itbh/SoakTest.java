@@ -0,0 +1,304 @@
+package at.itbh;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import javax.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.Vertx;
+
+/**
+ * Parses large generated files and asserts on content, live heap, allocation per row and
+ * throughput
+ *
+ * <p>
+ * Every file is parsed twice: once with a fast consumer for measuring throughput and allocation,
+ * and once with a consumer slower than the parser, which only keeps the live heap small if the
+ * parser honors backpressure. The live heap is sampled after a full garbage collection about once
+ * a second; the {@code soak} profile also limits the heap to 256 MB, so unbounded buffering fails
+ * with an {@link OutOfMemoryError}. Both passes compare the checksum of the consumed lines with
+ * the generated ones. Parsing runs on the {@link ParserWorkerPool} and files are read by the
+ * vert.x event loop; the threads of both live as long as the application, so only their
+ * allocations are measured.
+ * </p>
+ * <p>
+ * Only run by the {@code soak} profile: {@code ./mvnw test -Psoak}. The limits are configured by
+ * system properties:
+ * </p>
+ * <ul>
+ * <li>{@code soak.size-mb}: the size of every generated file</li>
+ * <li>{@code soak.max-live-heap-mb}: the maximum heap usage after a garbage collection while
+ * parsing with the slow consumer</li>
+ * <li>{@code soak.max-allocation-overhead}: the allocated bytes per row allowed regardless of
+ * the row size</li>
+ * <li>{@code soak.max-allocation-factor}: the allocated bytes per row allowed per byte of the
+ * average row size, on top of the overhead</li>
+ * <li>{@code soak.min-mb-per-second}: the minimum throughput with the fast consumer</li>
+ * <li>{@code soak.consumer-pause-rows}: the slow consumer pauses for a millisecond every this many
+ * rows</li>
+ * </ul>
+ */
+@QuarkusTest
+@Tag("soak")
+public class SoakTest {
+
+    static final long SIZE = Long.getLong("soak.size-mb", 256) * 1024 * 1024;
+    static final long MAX_LIVE_HEAP = Long.getLong("soak.max-live-heap-mb", 64) * 1024 * 1024;
+    static final long MAX_ALLOCATION_OVERHEAD = Long.getLong("soak.max-allocation-overhead", 1024);
+    static final double MAX_ALLOCATION_FACTOR =
+            Double.parseDouble(System.getProperty("soak.max-allocation-factor", "20"));
+    static final double MIN_MB_PER_SECOND =
+            Double.parseDouble(System.getProperty("soak.min-mb-per-second", "5"));
+    static final int CONSUMER_PAUSE_ROWS = Integer.getInteger("soak.consumer-pause-rows", 100);
+
+    /**
+     * vert.x' event loop threads, which read the files in {@link LineParser.Mode#ASYNC_FILE} mode
+     */
+    static final String EVENT_LOOP_THREAD_PREFIX = "vert.x-eventloop-thread";
+
+    static final Map<String, CsvGenerator.Result> DATA_SETS = new LinkedHashMap<>();
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ParserWorkerPool workerPool;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        var directory = new File("target/soak");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+        DATA_SETS.put("narrow", new CsvGenerator().setSize(SIZE).setColumns(3)
+                .generate(new File(directory, "narrow.csv")));
+        DATA_SETS.put("wide", new CsvGenerator().setSize(SIZE).setColumns(200)
+                .generate(new File(directory, "wide.csv")));
+        DATA_SETS.put("quoted-utf8-crlf",
+                new CsvGenerator().setSize(SIZE).setQuoted(true).setMultiByte(true).setCrlf(true)
+                        .generate(new File(directory, "quoted-utf8-crlf.csv")));
+        // longer than the default read buffer of the AsyncFile
+        DATA_SETS.put("long-lines",
+                new CsvGenerator().setSize(SIZE).setLongLines(256 * 1024, 100)
+                        .generate(new File(directory, "long-lines.csv")));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LineParser.Mode.class)
+    void testLineParser(LineParser.Mode mode) throws IOException {
+        for (var dataSet : DATA_SETS.entrySet()) {
+            var parser = new LineParser(vertx, StandardCharsets.UTF_8);
+            parser.setMode(mode);
+            parser.setWorkerPool(workerPool);
+            var result = dataSet.getValue();
+            var name = mode + "/" + dataSet.getKey();
+
+            var measurement = startMeasurement();
+            var consumed =
+                    consume(parser.parse(result.getFile()), String::hashCode, 0, measurement);
+            measurement.assertFast(name, result, consumed);
+
+            measurement = startMeasurement();
+            consumed = consume(parser.parse(result.getFile()), String::hashCode,
+                    CONSUMER_PAUSE_ROWS, measurement);
+            measurement.assertSlow(name, result, consumed);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CsvParser.Mode.class)
+    void testCsvParser(CsvParser.Mode mode) throws IOException {
+        for (var dataSet : DATA_SETS.entrySet()) {
+            CsvParser parser;
+            try {
+                parser = new CsvParser(vertx, StandardCharsets.UTF_8, ',', mode);
+            } catch (UnsupportedOperationException e) {
+                Assumptions.assumeTrue(false, mode + " isn't supported");
+                return;
+            }
+            parser.setWorkerPool(workerPool);
+            var result = dataSet.getValue();
+            var name = mode + "/" + dataSet.getKey();
+            ToIntFunction<List<String>> lineHash = record -> CsvGenerator.lineHash(record, ',');
+
+            var measurement = startMeasurement();
+            var consumed = consume(parser.parseToList(result.getFile(), new CsvParser.Header()),
+                    lineHash, 0, measurement);
+            measurement.assertFast(name, result, consumed);
+
+            measurement = startMeasurement();
+            consumed = consume(parser.parseToList(result.getFile(), new CsvParser.Header()),
+                    lineHash, CONSUMER_PAUSE_ROWS, measurement);
+            measurement.assertSlow(name, result, consumed);
+        }
+    }
+
+    private Measurement startMeasurement() {
+        return new Measurement(workerPool.getName(), EVENT_LOOP_THREAD_PREFIX);
+    }
+
+    /**
+     * Consumes all items
+     *
+     * @param items the items to consume
+     * @param lineHash computes the {@link String#hashCode()} of the line an item was parsed from
+     * @param pauseRows pause for a millisecond every this many rows; 0 for no pauses
+     * @param measurement samples the live heap while pausing
+     * @return the number of rows and the checksum of the consumed lines
+     */
+    private <T> long[] consume(Multi<T> items, ToIntFunction<T> lineHash, int pauseRows,
+            Measurement measurement) {
+        long[] consumed = {0, 0};
+        items.subscribe().asIterable().forEach(item -> {
+            consumed[1] = CsvGenerator.checksum(consumed[1], lineHash.applyAsInt(item));
+            consumed[0]++;
+            if (pauseRows > 0 && consumed[0] % pauseRows == 0) {
+                measurement.sampleLiveHeap();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        return consumed;
+    }
+
+    /**
+     * Measures the live heap, bytes allocated by the parsing threads and runtime
+     *
+     * <p>
+     * The allocated bytes are tracked per thread for the threads whose names start with one of the
+     * given prefixes; allocations of threads which terminate while measuring are lost, so the
+     * measurement fails if one of them terminates.
+     * </p>
+     */
+    static class Measurement {
+        static final long HEAP_SAMPLE_INTERVAL_NANOS = 1_000_000_000L;
+
+        final String[] threadPrefixes;
+        final MemoryMXBean memory;
+        final com.sun.management.ThreadMXBean threads;
+        final Map<Long, Long> allocatedBefore;
+        final long startTime;
+        long maxLiveHeap;
+        long lastHeapSample;
+
+        Measurement(String... threadPrefixes) {
+            this.threadPrefixes = threadPrefixes;
+            memory = ManagementFactory.getMemoryMXBean();
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            System.gc();
+            maxLiveHeap = memory.getHeapMemoryUsage().getUsed();
+            allocatedBefore = allocatedBytes();
+            startTime = System.nanoTime();
+            // sample at the first pause already
+            lastHeapSample = startTime - HEAP_SAMPLE_INTERVAL_NANOS;
+        }
+
+        /**
+         * Collects garbage and records the used heap unless it has been sampled within the last
+         * second; the first call always samples
+         */
+        void sampleLiveHeap() {
+            long now = System.nanoTime();
+            if (now - lastHeapSample < HEAP_SAMPLE_INTERVAL_NANOS) {
+                return;
+            }
+            System.gc();
+            maxLiveHeap = Math.max(maxLiveHeap, memory.getHeapMemoryUsage().getUsed());
+            lastHeapSample = System.nanoTime();
+        }
+
+        private boolean isMeasured(String threadName) {
+            for (String prefix : threadPrefixes) {
+                if (threadName.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Map<Long, Long> allocatedBytes() {
+            Map<Long, Long> allocated = new HashMap<>();
+            for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+                if (thread == null || !isMeasured(thread.getThreadName())) {
+                    continue;
+                }
+                long bytes = threads.getThreadAllocatedBytes(thread.getThreadId());
+                if (bytes >= 0) {
+                    allocated.put(thread.getThreadId(), bytes);
+                }
+            }
+            return allocated;
+        }
+
+        private long allocatedSinceStart(String name) {
+            var allocatedAfter = allocatedBytes();
+            long allocated = 0;
+            for (var thread : allocatedAfter.entrySet()) {
+                allocated += thread.getValue() - allocatedBefore.getOrDefault(thread.getKey(), 0L);
+            }
+            for (var thread : allocatedBefore.keySet()) {
+                Assertions.assertTrue(allocatedAfter.containsKey(thread),
+                        name + ": thread " + thread + " terminated while measuring allocations");
+            }
+            return allocated;
+        }
+
+        private void assertContent(String name, CsvGenerator.Result result, long[] consumed) {
+            Assertions.assertEquals(result.getRows(), consumed[0], name + ": rows");
+            Assertions.assertEquals(result.getChecksum(), consumed[1], name + ": checksum");
+        }
+
+        /**
+         * Asserts on the content, throughput and allocation per row of the fast consumer
+         */
+        void assertFast(String name, CsvGenerator.Result result, long[] consumed) {
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            long allocatedPerRow = allocatedSinceStart(name) / Math.max(1, consumed[0]);
+            double mbPerSecond = result.getBytes() / 1024.0 / 1024.0 / seconds;
+            double bytesPerRow = (double) result.getBytes() / result.getRows();
+            double maxAllocatedPerRow =
+                    MAX_ALLOCATION_OVERHEAD + MAX_ALLOCATION_FACTOR * bytesPerRow;
+            System.out.printf("%s: %d rows in %.1fs, %.1f MB/s, %d bytes allocated per row "
+                    + "(%.1f bytes per row, limit %.0f)%n", name, consumed[0], seconds,
+                    mbPerSecond, allocatedPerRow, bytesPerRow, maxAllocatedPerRow);
+
+            assertContent(name, result, consumed);
+            Assertions.assertTrue(allocatedPerRow <= maxAllocatedPerRow,
+                    name + ": " + allocatedPerRow + " bytes allocated per row");
+            Assertions.assertTrue(mbPerSecond >= MIN_MB_PER_SECOND,
+                    name + ": " + mbPerSecond + " MB/s");
+        }
+
+        /**
+         * Asserts on the content and live heap of the slow consumer
+         */
+        void assertSlow(String name, CsvGenerator.Result result, long[] consumed) {
+            System.out.printf("%s: slow consumer, max live heap %d MB%n", name,
+                    maxLiveHeap / 1024 / 1024);
+
+            assertContent(name, result, consumed);
+            Assertions.assertTrue(maxLiveHeap <= MAX_LIVE_HEAP,
+                    name + ": live heap " + maxLiveHeap / 1024 / 1024 + " MB");
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package at.itbh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+@QuarkusTest
+public class WorkerPoolTest {
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ParserWorkerPool workerPool;
+
+    @Test
+    void testBuffersSplitOnWorkerPool() {
+        var parser = new LineParser(vertx, Charset.defaultCharset());
+        parser.setWorkerPool(workerPool);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        var buffers = new Buffer[] {Buffer.buffer("line one\nline "), Buffer.buffer("two\n"),
+                Buffer.buffer("line three")};
+        parser.parse(Multi.createFrom().items(buffers)).onItem()
+                .invoke(line -> threads.add(Thread.currentThread().getName())).subscribe()
+                .withSubscriber(AssertSubscriber.create(3)).awaitCompletion().assertCompleted()
+                .assertItems("line one", "line two", "line three");
+        assertWorkerThreads(threads);
+    }
+
+    @Test
+    void testFileSplitOnWorkerPool() throws IOException {
+        for (var mode : LineParser.Mode.values()) {
+            var parser = new LineParser(vertx, Charset.forName("utf8"), 4);
+            parser.setMode(mode);
+            parser.setWorkerPool(workerPool);
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            parser.parse(new File("src/test/resources/LineParser_test_file.txt")).onItem()
+                    .invoke(line -> threads.add(Thread.currentThread().getName())).subscribe()
+                    .withSubscriber(AssertSubscriber.create(3)).awaitCompletion()
+                    .assertCompleted()
+                    .assertItems("First line", "Second line", "Third line");
+            assertWorkerThreads(threads);
+        }
+    }
+
+    @Test
+    void testSlowSubscriberBoundsReading() {
+        for (var pool : new ParserWorkerPool[] {null, workerPool}) {
+            var parser = new LineParser(vertx, Charset.defaultCharset());
+            parser.setWorkerPool(pool);
+            var produced = new AtomicInteger();
+            var buffers = Multi.createFrom().range(0, 100000)
+                    .onItem().transform(i -> Buffer.buffer("line " + i + "\n"))
+                    .onItem().invoke(produced::incrementAndGet);
+            var subscriber = parser.parse(buffers).subscribe()
+                    .withSubscriber(AssertSubscriber.create(10));
+            subscriber.awaitItems(10);
+            // only the bounded queue in front of the pool may be filled ahead
+            Assertions.assertTrue(produced.get() <= 512, "produced " + produced.get());
+            subscriber.request(Long.MAX_VALUE).awaitCompletion().assertCompleted();
+            Assertions.assertEquals(100000, subscriber.getItems().size());
+            Assertions.assertEquals("line 99999", subscriber.getLastItem());
+        }
+    }
+
+    private void assertWorkerThreads(Set<String> threads) {
+        Assertions.assertFalse(threads.isEmpty());
+        for (String thread : threads) {
+            Assertions.assertTrue(thread.startsWith(workerPool.getName()), thread);
+        }
+    }
+}